@@ -2,11 +2,17 @@ package com.autoenchant;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientWorldEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.ServerInfo;
 import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
 import org.lwjgl.glfw.GLFW;
 
+import java.util.Locale;
+
 public class AutoEnchantBuyClient implements ClientModInitializer {
     private static Config     config;
     private static KeyBinding configKeyBinding;
@@ -24,6 +30,14 @@ public class AutoEnchantBuyClient implements ClientModInitializer {
                 "category.autoenchantbuy"
         ));
 
+        // ── ciclo de conexión ─────────────────────────────────────────
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) ->
+                EnchantmentBuyHandler.onJoin(client, serverKey(handler)));
+        ClientWorldEvents.AFTER_CLIENT_WORLD_CHANGE.register((client, world) ->
+                EnchantmentBuyHandler.onWorldChange());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) ->
+                EnchantmentBuyHandler.onDisconnect());
+
         // ── tick loop ─────────────────────────────────────────────────
         ClientTickEvents.END_CLIENT_TICK.register(client -> {
             // open config screen
@@ -39,4 +53,10 @@ public class AutoEnchantBuyClient implements ClientModInitializer {
     }
 
     public static Config getConfig() { return config; }
+
+    /** Clave del perfil por servidor: dirección del servidor, o "singleplayer". */
+    private static String serverKey(ClientPlayNetworkHandler handler) {
+        ServerInfo info = handler.getServerInfo();
+        return info != null ? info.address.toLowerCase(Locale.ROOT) : "singleplayer";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.autoenchant;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sends server commands for the buy loop through the command packet path
+ * ({@link ClientPlayNetworkHandler#sendChatCommand}) instead of the chat
+ * path, so they are not signed as chat messages nor counted by the
+ * server's chat spam filter.
+ *
+ * Two guards sit in front of the network:
+ *   - dedup: an identical command that is still pending (sent, but the
+ *            caller has not settled it yet) is never sent twice.  The
+ *            buy FSM already guarantees this (it only sends from IDLE
+ *            and settles on every exit from WAITING_FOR_MENU), so this
+ *            is a backstop against a future caller or FSM change, not a
+ *            path the current loop relies on.
+ *   - budget: one global sliding window of send timestamps, checked
+ *            against the current server's ServerProfile limits
+ *            (commandBudget per commandWindowMs).  The window is not
+ *            keyed by server and survives server switches on purpose:
+ *            behind a proxy every backend shares the same spam filter.
+ */
+public final class CommandDispatcher {
+
+    // ── state ─────────────────────────────────────────────────────────
+    private static final Set<String> pending = new HashSet<>();      // sent, awaiting settle()
+    private static final Deque<Long> sentAt  = new ArrayDeque<>();   // send timestamps inside the window
+
+    private CommandDispatcher() {}
+
+    // ── queries ───────────────────────────────────────────────────────
+    /** True if another command fits in the server's rate budget right now. */
+    public static boolean hasBudget(ServerProfile profile, long now) {
+        while (!sentAt.isEmpty() && now - sentAt.peekFirst() >= profile.getCommandWindowMs()) {
+            sentAt.pollFirst();
+        }
+        return sentAt.size() < profile.getCommandBudget();
+    }
+
+    // ── dispatch ──────────────────────────────────────────────────────
+    /**
+     * Sends the command unless it is already pending or the budget is spent.
+     * Returns true only if the command actually went over the wire.
+     */
+    public static boolean send(MinecraftClient client, ServerProfile profile, String command) {
+        ClientPlayNetworkHandler network = client.getNetworkHandler();
+        if (network == null) return false;
+
+        String cmd = normalize(command);
+        long   now = System.currentTimeMillis();
+
+        if (pending.contains(cmd)) {
+            AutoEnchantBuy.LOGGER.debug("[AEB] Comando duplicado ignorado: /{}", cmd);
+            return false;
+        }
+        if (!hasBudget(profile, now)) {
+            AutoEnchantBuy.LOGGER.debug("[AEB] Presupuesto de comandos agotado: /{}", cmd);
+            return false;
+        }
+
+        network.sendChatCommand(cmd);
+        pending.add(cmd);
+        sentAt.addLast(now);
+        return true;
+    }
+
+    /** The command got its answer (or timed out); it may be sent again. */
+    public static void settle(String command) {
+        pending.remove(normalize(command));
+    }
+
+    /**
+     * Forget pending commands (disconnect / world change).  The rate window
+     * is kept: it expires on its own, and a proxy server switch still
+     * counts against the same spam filter.
+     */
+    public static void reset() {
+        pending.clear();
+    }
+
+    // ── util ──────────────────────────────────────────────────────────
+    /** sendChatCommand expects the command without the leading '/'. */
+    private static String normalize(String command) {
+        String cmd = command.trim();
+        return cmd.startsWith("/") ? cmd.substring(1) : cmd;
+    }
+}
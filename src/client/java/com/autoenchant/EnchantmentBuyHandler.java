@@ -1,6 +1,7 @@
 package com.autoenchant;
 
 import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.screen.ingame.HandledScreen;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.screen.GenericContainerScreenHandler;
 import net.minecraft.screen.ScreenHandler;
@@ -10,6 +11,10 @@ import net.minecraft.text.Text;
 /**
  * Finite-state machine that drives the auto-buy loop.
  *
+ * The menu command goes out through CommandDispatcher (command packet, not
+ * chat), which also dedups it while pending and enforces the per-server
+ * command budget.
+ *
  * States
  * ------
  *   IDLE            – doing nothing; watches XP and triggers a buy when ready.
@@ -27,20 +32,42 @@ import net.minecraft.text.Text;
  * window startPurchase() could fire a second time.
  *
  * The FSM never leaves WAITING_FOR_MENU until the menu actually appears, so
- * a second command is never sent.  A hard cooldown of COOLDOWN_MS is also
- * enforced after every successful purchase as an extra safety net.
+ * a second command is never sent.  A hard cooldown (ServerProfile
+ * cooldownMs) is also enforced after every successful purchase as an
+ * extra safety net.
+ *
+ * Pre-flight gate
+ * ---------------
+ * Before leaving IDLE the loop checks everything that would make the
+ * purchase fail anyway (another screen open, item on the cursor, no free
+ * inventory slot, server command budget spent).  A doomed attempt is
+ * blocked before the command goes over the wire and the reason is shown
+ * on the action bar instead of paying a full command/menu/click/close
+ * round trip plus the cooldown.
+ *
+ * Connection lifecycle
+ * --------------------
+ * AutoEnchantBuyClient wires onJoin / onWorldChange / onDisconnect to the
+ * Fabric connection and world events.  Leaving a server resets everything;
+ * joining one loads that server's cached ServerProfile (timings, slot map,
+ * menu fingerprint) and clears the cooldown, so buying resumes on the first
+ * eligible tick instead of waiting out a stale timeout.
  */
 public class EnchantmentBuyHandler {
 
     // ── tunables ──────────────────────────────────────────────────────
-    /** ms to wait after sending the command before we time-out. */
-    private static final long MENU_TIMEOUT_MS  = 3_000;
-    /** ms to wait after the menu opens before clicking (lets the server
-     *  populate the slots; 1 tick ≈ 50 ms is usually enough). */
-    private static final long CLICK_DELAY_MS   =    60;
-    /** Hard cooldown between purchases – prevents any possibility of
-     *  back-to-back buys even if the player is swimming in XP.         */
-    private static final long COOLDOWN_MS      = 1_200;
+    // Per-server timings (menu timeout, click delay, cooldown) live in
+    // ServerProfile; only purely client-side values stay here.
+    /** How often a blocked pre-flight re-posts its reason on the action
+     *  bar (the vanilla overlay fades after a couple of seconds).  Only
+     *  for reasons the player must act on – see showBlocked().          */
+    private static final long BLOCK_HINT_MS    = 2_000;
+
+    // ── pre-flight reasons ────────────────────────────────────────────
+    private static final String BLOCK_SCREEN = "Cierra la pantalla abierta para continuar.";
+    private static final String BLOCK_CURSOR = "Suelta el ítem del cursor para continuar.";
+    private static final String BLOCK_FULL   = "Inventario lleno – libera un slot para continuar.";
+    private static final String BLOCK_BUDGET = "Límite de comandos del servidor – esperando.";
 
     // ── state ─────────────────────────────────────────────────────────
     private enum State { IDLE, WAITING_FOR_MENU, CLICKING, CLOSING }
@@ -48,10 +75,15 @@ public class EnchantmentBuyHandler {
     private static State   state        = State.IDLE;
     private static long    stateEnteredAt = 0;         // System.currentTimeMillis() when we entered the current state
     private static long    lastPurchaseAt = 0;         // timestamp of the last successful purchase
+    private static String  blockedReason  = null;      // last pre-flight failure shown on the HUD
+    private static long    blockedShownAt = 0;         // when blockedReason was last posted
+    private static ServerProfile profile  = new ServerProfile();   // settings of the current server
+    private static String  menuCommand    = VersionHelper.enchantmentMenuCommand(profile);   // resolved per server
 
     // ── public entry ──────────────────────────────────────────────────
     public static void tick(MinecraftClient client) {
         if (client.player == null || !AutoEnchantBuyClient.getConfig().isEnabled()) {
+            if (state != State.IDLE) CommandDispatcher.reset();   // abandoned purchase – don't leave it pending
             state = State.IDLE;
             return;
         }
@@ -69,26 +101,85 @@ public class EnchantmentBuyHandler {
         long now = System.currentTimeMillis();
 
         // respect cooldown
-        if (now - lastPurchaseAt < COOLDOWN_MS) return;
+        if (now - lastPurchaseAt < profile.getCooldownMs()) return;
 
         EnchantmentType type = AutoEnchantBuyClient.getConfig().getSelectedType();
         ClientPlayerEntity player = client.player;
 
         if (player.experienceLevel >= type.getXpCost()) {
+            String reason = preflight(client, player, now);
+            if (reason != null) {
+                showBlocked(player, reason, now);
+                return;
+            }
+            blockedReason = null;
+
+            if (!CommandDispatcher.send(client, profile, menuCommand)) return;
+
             // ── transition → WAITING_FOR_MENU ──
             state          = State.WAITING_FOR_MENU;
             stateEnteredAt = now;
-
-            player.networkHandler.sendChatMessage(VersionHelper.enchantmentMenuCommand());
             AutoEnchantBuy.LOGGER.info("[AEB] Comando enviado para comprar: {}", type.getDisplayName());
         }
     }
 
+    /**
+     * Cheap checks that would make the purchase fail after the round trip.
+     * Returns a player-facing reason, or null when the attempt may proceed.
+     */
+    private static String preflight(MinecraftClient client, ClientPlayerEntity player, long now) {
+        if (client.currentScreen != null)                             return BLOCK_SCREEN;
+        if (!player.currentScreenHandler.getCursorStack().isEmpty())  return BLOCK_CURSOR;
+        if (!InventoryTracker.hasFreeSlot(player))                    return BLOCK_FULL;
+        if (!CommandDispatcher.hasBudget(profile, now))               return BLOCK_BUDGET;
+        return null;
+    }
+
+    /**
+     * Posts the block reason on the action bar when it changes.  Reasons the
+     * player must act on (cursor, full inventory) are re-posted every
+     * BLOCK_HINT_MS while they hold; the others (chat / death / config
+     * screen open, command budget) are posted once, so they don't keep
+     * overwriting the server's own action-bar messages.
+     */
+    private static void showBlocked(ClientPlayerEntity player, String reason, long now) {
+        if (reason.equals(blockedReason)) {
+            boolean nag = reason.equals(BLOCK_CURSOR) || reason.equals(BLOCK_FULL);
+            if (!nag || now - blockedShownAt < BLOCK_HINT_MS) return;
+        }
+
+        if (!reason.equals(blockedReason)) {
+            AutoEnchantBuy.LOGGER.info("[AEB] Compra bloqueada: {}", reason);
+        }
+        blockedReason  = reason;
+        blockedShownAt = now;
+        player.sendMessage(Text.literal("§7[§6AutoEnchant§7] §e" + reason), true);
+    }
+
     // ── WAITING_FOR_MENU ──────────────────────────────────────────────
     private static void tickWaiting(MinecraftClient client) {
         ScreenHandler handler = client.player.currentScreenHandler;
 
         if (handler instanceof GenericContainerScreenHandler) {
+            CommandDispatcher.settle(menuCommand);
+            String title = menuTitle(client);
+
+            if (!profile.matchesMenu(title)) {
+                // not our menu – never click it.  Abort at once (no timeout stall)
+                // and forget the fingerprint: if the shop was renamed, or the title
+                // was learned from the wrong screen, the next purchase relearns it.
+                AutoEnchantBuy.LOGGER.warn("[AEB] Menú '{}' no coincide con la huella '{}' – compra cancelada.",
+                        title, profile.getMenuTitle());
+                profile.setMenuTitle("");
+                AutoEnchantBuyClient.getConfig().save();
+
+                client.player.closeHandledScreen();
+                client.player.sendMessage(
+                        Text.literal("§7[§6AutoEnchant§7] §eMenú desconocido – se reintentará."), true);
+                state = State.IDLE;
+                return;
+            }
+
             // menu appeared – move to CLICKING and start the click-delay timer
             state          = State.CLICKING;
             stateEnteredAt = System.currentTimeMillis();
@@ -96,10 +187,11 @@ public class EnchantmentBuyHandler {
         }
 
         // timeout guard
-        if (System.currentTimeMillis() - stateEnteredAt > MENU_TIMEOUT_MS) {
+        if (System.currentTimeMillis() - stateEnteredAt > profile.getMenuTimeoutMs()) {
             AutoEnchantBuy.LOGGER.warn("[AEB] Timeout esperando el menú de encantamientos.");
             client.player.sendMessage(
                     Text.literal("§7[§6AutoEnchant§7] §cError: no se pudo abrir el menú."), false);
+            CommandDispatcher.settle(menuCommand);
             state = State.IDLE;
         }
     }
@@ -107,7 +199,7 @@ public class EnchantmentBuyHandler {
     // ── CLICKING ──────────────────────────────────────────────────────
     private static void tickClicking(MinecraftClient client) {
         // wait for the short click-delay
-        if (System.currentTimeMillis() - stateEnteredAt < CLICK_DELAY_MS) return;
+        if (System.currentTimeMillis() - stateEnteredAt < profile.getClickDelayMs()) return;
 
         ScreenHandler handler = client.player.currentScreenHandler;
         if (!(handler instanceof GenericContainerScreenHandler)) {
@@ -118,12 +210,13 @@ public class EnchantmentBuyHandler {
         }
 
         EnchantmentType type = AutoEnchantBuyClient.getConfig().getSelectedType();
+        int             slot = profile.slotFor(type);
 
         // ── perform the single click ──
         if (client.interactionManager != null) {
             client.interactionManager.clickSlot(
                     handler.syncId,
-                    type.getSlotIndex(),
+                    slot,
                     0,
                     SlotActionType.PICKUP,
                     client.player
@@ -131,7 +224,14 @@ public class EnchantmentBuyHandler {
         }
 
         lastPurchaseAt = System.currentTimeMillis();
-        AutoEnchantBuy.LOGGER.info("[AEB] Click en slot {}  ({})", type.getSlotIndex(), type.getDisplayName());
+        AutoEnchantBuy.LOGGER.info("[AEB] Click en slot {}  ({})", slot, type.getDisplayName());
+
+        // first successful purchase on this server → remember the menu fingerprint
+        String title = menuTitle(client);
+        if (profile.getMenuTitle().isEmpty() && !title.isEmpty()) {
+            profile.setMenuTitle(title);
+            AutoEnchantBuyClient.getConfig().save();
+        }
 
         // confirmation message
         client.player.sendMessage(
@@ -149,14 +249,53 @@ public class EnchantmentBuyHandler {
 
         if (client.player != null) {
             client.player.closeHandledScreen();
+            // one rescan per purchase corrects any drift from client-side click prediction
+            InventoryTracker.resync(client.player);
         }
         state = State.IDLE;
     }
 
+    // ── lifecycle ─────────────────────────────────────────────────────
+    /** Joined a server: reset, load its cached profile and warm the inventory counter. */
+    public static void onJoin(MinecraftClient client, String serverKey) {
+        reset();
+        lastPurchaseAt = 0;   // no stale cooldown – resume on the first eligible tick
+        profile     = AutoEnchantBuyClient.getConfig().getServerProfile(serverKey);
+        menuCommand = VersionHelper.enchantmentMenuCommand(profile);
+        if (client.player != null) InventoryTracker.resync(client.player);
+        AutoEnchantBuy.LOGGER.info("[AEB] Perfil cargado para {}", serverKey);
+    }
+
+    /**
+     * World / dimension changed: any open menu is gone, so drop the in-flight
+     * purchase.  The purchase cooldown is kept – same session, same server.
+     */
+    public static void onWorldChange() {
+        reset();
+    }
+
+    /** Left the server: reset and fall back to default settings. */
+    public static void onDisconnect() {
+        reset();
+        lastPurchaseAt = 0;
+        profile     = new ServerProfile();
+        menuCommand = VersionHelper.enchantmentMenuCommand(profile);
+    }
+
     // ── util ──────────────────────────────────────────────────────────
+    /** Title of the open container screen, or "" if none. */
+    private static String menuTitle(MinecraftClient client) {
+        return client.currentScreen instanceof HandledScreen<?> screen
+                ? screen.getTitle().getString()
+                : "";
+    }
+
     /** Hard-reset (call on disconnect / mod disable). */
     public static void reset() {
         state          = State.IDLE;
         stateEnteredAt = 0;
+        blockedReason  = null;
+        InventoryTracker.reset();
+        CommandDispatcher.reset();
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.autoenchant;
+
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.entity.player.PlayerInventory;
+
+/**
+ * Incrementally maintained free-slot counter for the player's main
+ * inventory (hotbar + 27 storage slots).
+ *
+ * The counter is fed by {@code PlayerInventoryMixin}, which reports every
+ * setStack on a main slot as the server's slot updates land, so the buy
+ * loop can ask "is there room?" every tick without rescanning 36 slots.
+ *
+ * Transitions are detected against our own occupied mask, not against the
+ * live stack: client-side prediction empties stacks in place (drops,
+ * placing the last block, eating), so by the time the server's EMPTY
+ * update arrives the live stack already looks empty.  The mask still says
+ * "occupied", so that update is counted correctly.
+ *
+ * A full rescan only happens when the tracked inventory instance changes
+ * (join, respawn, dimension change) or when {@link #resync} is called
+ * explicitly after a purchase.
+ */
+public final class InventoryTracker {
+
+    // ── state ─────────────────────────────────────────────────────────
+    private static PlayerInventory tracked   = null;   // inventory the counter belongs to
+    private static final boolean[] occupied  = new boolean[PlayerInventory.MAIN_SIZE];
+    private static int             freeSlots = 0;
+
+    private InventoryTracker() {}
+
+    // ── queries ───────────────────────────────────────────────────────
+    /** True if at least one main slot is free; rescans only if the player's inventory instance changed. */
+    public static boolean hasFreeSlot(ClientPlayerEntity player) {
+        if (player.getInventory() != tracked) resync(player);
+        return freeSlots > 0;
+    }
+
+    // ── updates ───────────────────────────────────────────────────────
+    /** Full rescan of the main inventory. */
+    public static void resync(ClientPlayerEntity player) {
+        tracked   = player.getInventory();
+        freeSlots = 0;
+        for (int i = 0; i < PlayerInventory.MAIN_SIZE; i++) {
+            occupied[i] = !tracked.getStack(i).isEmpty();
+            if (!occupied[i]) freeSlots++;
+        }
+    }
+
+    /** Called from the mixin before a main-inventory slot is overwritten. */
+    public static void onSlotChanged(PlayerInventory inventory, int slot, boolean nowEmpty) {
+        if (inventory != tracked || occupied[slot] != nowEmpty) return;
+
+        occupied[slot] = !nowEmpty;
+        freeSlots     += nowEmpty ? 1 : -1;
+    }
+
+    /** Forget the tracked inventory; the next query rescans. */
+    public static void reset() {
+        tracked   = null;
+        freeSlots = 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.autoenchant.mixin;
+
+import com.autoenchant.InventoryTracker;
+import net.minecraft.entity.player.PlayerInventory;
+import net.minecraft.item.ItemStack;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+// Alimenta el contador de slots libres de InventoryTracker con cada cambio
+// de slot del inventario principal (paquetes de slot-update / inventario completo).
+@Mixin(PlayerInventory.class)
+public abstract class PlayerInventoryMixin {
+
+    @Inject(method = "setStack", at = @At("HEAD"))
+    private void onSetStack(int slot, ItemStack stack, CallbackInfo ci) {
+        if (slot < 0 || slot >= PlayerInventory.MAIN_SIZE) return;
+
+        PlayerInventory self = (PlayerInventory) (Object) this;
+        InventoryTracker.onSlotChanged(self, slot, stack.isEmpty());
+    }
+}
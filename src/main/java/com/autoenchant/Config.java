@@ -7,6 +7,8 @@ import net.fabricmc.loader.api.FabricLoader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class Config {
     private static final Gson  GSON        = new GsonBuilder().setPrettyPrinting().create();
@@ -17,6 +19,7 @@ public class Config {
     // ── persisted fields ──────────────────────────────────────────────
     private boolean         enabled      = false;
     private String          selectedType = EnchantmentType.SIMPLE.name();   // stored as String for safe deserialisation
+    private Map<String, ServerProfile> servers = new LinkedHashMap<>();     // keyed by server address
 
     // ── runtime (never written to disk) ───────────────────────────────
     private transient EnchantmentType resolvedType = null;
@@ -79,4 +82,17 @@ public class Config {
         this.selectedType  = type.name();
         save();
     }
+
+    /** Cached settings for the given server; created (and persisted) with defaults on first visit. */
+    public ServerProfile getServerProfile(String serverKey) {
+        if (servers == null) servers = new LinkedHashMap<>();   // configs written before per-server profiles
+
+        ServerProfile profile = servers.get(serverKey);
+        if (profile == null) {
+            profile = new ServerProfile();
+            servers.put(serverKey, profile);
+            save();
+        }
+        return profile;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.autoenchant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ajustes cacheados por servidor (clave = dirección del servidor).
+ *
+ * Se persisten dentro de Config y se cargan al entrar al servidor, de modo
+ * que el loop de compra arranca con los tiempos, el mapa de slots y la
+ * huella del menú que ya funcionaron la última vez.
+ */
+public class ServerProfile {
+
+    // ── tiempos (ms) ──────────────────────────────────────────────────
+    /** Espera tras enviar el comando antes del time-out. */
+    private long menuTimeoutMs = 3_000;
+    /** Espera tras abrirse el menú antes del click (el servidor llena los
+     *  slots; 1 tick ≈ 50 ms suele bastar). */
+    private long clickDelayMs  =    60;
+    /** Cooldown duro entre compras – evita compras seguidas aunque sobre XP. */
+    private long cooldownMs    = 1_200;
+
+    // ── comandos ──────────────────────────────────────────────────────
+    /** Variante del comando del menú para este servidor (con o sin '/'); vacío = la de VersionHelper. */
+    private String menuCommand     = "";
+    /** Máximo de comandos por ventana – por debajo del filtro anti-spam del servidor. */
+    private int    commandBudget   = 10;
+    private long   commandWindowMs = 10_000;
+
+    // ── mapa de slots: EnchantmentType.name() → slot del menú ─────────
+    // Vacío = se usan los slots por defecto de EnchantmentType.
+    private Map<String, Integer> slots = new LinkedHashMap<>();
+
+    // ── huella del menú ───────────────────────────────────────────────
+    // Título del menú de encantamientos; se aprende en la primera compra.
+    // Vacío = se acepta cualquier GenericContainerScreen.  Si se abre un
+    // contenedor con otro título, no se clickea: la compra se cancela en el
+    // acto y la huella se borra para reaprenderla en la siguiente compra.
+    private String menuTitle = "";
+
+    // ── getters ───────────────────────────────────────────────────────
+    public long getMenuTimeoutMs() { return menuTimeoutMs; }
+    public long getClickDelayMs()  { return clickDelayMs; }
+    public long getCooldownMs()    { return cooldownMs; }
+
+    public String getMenuCommand()     { return menuCommand != null ? menuCommand : ""; }
+    public int    getCommandBudget()   { return Math.max(1, commandBudget); }
+    public long   getCommandWindowMs() { return commandWindowMs; }
+
+    /** Slot a clickear para el tipo dado (override del servidor o el por defecto). */
+    public int slotFor(EnchantmentType type) {
+        Integer slot = slots != null ? slots.get(type.name()) : null;
+        return slot != null ? slot : type.getSlotIndex();
+    }
+
+    public String getMenuTitle() { return menuTitle != null ? menuTitle : ""; }
+
+    /** True si el título coincide con la huella (o si aún no hay huella). */
+    public boolean matchesMenu(String title) {
+        String expected = getMenuTitle();
+        return expected.isEmpty() || expected.equals(title);
+    }
+
+    // ── setters ───────────────────────────────────────────────────────
+    public void setMenuTitle(String menuTitle) { this.menuTitle = menuTitle; }
+}
@@ -75,10 +75,14 @@ public final class VersionHelper {
     }
 
     /**
-     * Comando de chat para abrir el menú de encantamientos.
-     * Si en el futuro difiere entre versiones, hacer el branch aquí.
+     * Comando para abrir el menú de encantamientos, tal cual (la barra
+     * inicial la normaliza CommandDispatcher).
+     * Prioridad: variante configurada para el servidor; si no hay, la por
+     * defecto.  Si en el futuro difiere entre versiones, hacer el branch aquí.
      */
-    public static String enchantmentMenuCommand() {
+    public static String enchantmentMenuCommand(ServerProfile profile) {
+        String custom = profile.getMenuCommand().trim();
+        if (!custom.isEmpty()) return custom;
         return "/encantamientos";
     }
 }
\ No newline at end of file